@@ -24,6 +24,7 @@ import com.google.gerrit.entities.LabelTypes;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.PatchSetApproval;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.extensions.registration.DynamicItem;
 import com.google.gerrit.git.LockFailureException;
 import com.google.gerrit.git.ObjectIds;
@@ -45,8 +46,10 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
@@ -54,6 +57,7 @@ import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Ref;
@@ -62,7 +66,7 @@ import org.eclipse.jgit.notes.NoteMap;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 
-class CreateReviewNotes {
+class CreateReviewNotes implements AutoCloseable {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   interface Factory {
@@ -82,12 +86,16 @@ class CreateReviewNotes {
   private final Provider<InternalChangeQuery> queryProvider;
   private final DynamicItem<UrlFormatter> urlFormatter;
   private final PatchSetUtil psUtil;
+  private final NoChangeCache noChangeCache;
   private final Project.NameKey project;
   private final Repository git;
 
   private ObjectInserter inserter;
+  private ObjectReader reader;
+  private NoteMap existingNotes;
   private NoteMap reviewNotes;
   private StringBuilder message;
+  private final NoteStats stats = new NoteStats();
 
   @Inject
   CreateReviewNotes(
@@ -102,6 +110,7 @@ class CreateReviewNotes {
       Provider<InternalChangeQuery> queryProvider,
       DynamicItem<UrlFormatter> urlFormatter,
       PatchSetUtil psUtil,
+      NoChangeCache noChangeCache,
       @Assisted Project.NameKey project,
       @Assisted Repository git) {
     this.gerritServerIdent = gerritIdent;
@@ -124,44 +133,61 @@ class CreateReviewNotes {
     this.queryProvider = queryProvider;
     this.urlFormatter = urlFormatter;
     this.psUtil = psUtil;
+    this.noChangeCache = noChangeCache;
     this.project = project;
     this.git = git;
   }
 
-  void createNotes(
-      String branch, ObjectId oldObjectId, ObjectId newObjectId, ProgressMonitor monitor)
-      throws IOException {
-    if (ObjectId.zeroId().equals(newObjectId)) {
-      return;
+  /**
+   * Starts a walk over the commits that an update of a branch made reachable and that may need a
+   * note.
+   *
+   * <p>The walk does not retain commit bodies, so that large updates can be iterated and processed
+   * in chunks without holding all commits in memory. The caller must close it.
+   *
+   * @throws IOException if the walk cannot be started, e.g. because an object is missing; the
+   *     update must then not be considered as processed
+   */
+  RevWalk walk(String branch, ObjectId oldObjectId, ObjectId newObjectId) throws IOException {
+    RevWalk rw = new RevWalk(git);
+    try {
+      rw.setRetainBody(false);
+      RevCommit n = rw.parseCommit(newObjectId);
+      rw.markStart(n);
+      if (n.getParentCount() == 1 && n.getParent(0).equals(oldObjectId)) {
+        rw.markUninteresting(rw.parseCommit(oldObjectId));
+      } else {
+        markUninteresting(git, branch, rw, oldObjectId);
+      }
+      return rw;
+    } catch (IOException e) {
+      rw.close();
+      throw e;
     }
+  }
 
+  void createNotes(String branch, List<? extends ObjectId> commits, ProgressMonitor monitor)
+      throws IOException {
     try (RevWalk rw = new RevWalk(git)) {
-      try {
-        RevCommit n = rw.parseCommit(newObjectId);
-        rw.markStart(n);
-        if (n.getParentCount() == 1 && n.getParent(0).equals(oldObjectId)) {
-          rw.markUninteresting(rw.parseCommit(oldObjectId));
-        } else {
-          markUninteresting(git, branch, rw, oldObjectId);
-        }
-      } catch (Exception e) {
-        logger.atSevere().withCause(e).log("%s", e.getMessage());
-        return;
-      }
-
       if (monitor == null) {
         monitor = NullProgressMonitor.INSTANCE;
       }
 
-      for (RevCommit c : rw) {
+      for (ObjectId id : commits) {
+        RevCommit c = rw.parseCommit(id);
+        if (getExistingNotes().contains(c)) {
+          // Another server, or an earlier delivery of the same update, already created the note.
+          // Check this before the index query and the NoteDb load, so that a late duplicate is
+          // cheap.
+          stats.notesExisting++;
+          continue;
+        }
         PatchSet ps = loadPatchSet(c, branch);
         if (ps != null) {
+          stats.noteDbLoads++;
           ChangeNotes notes = notesFactory.create(project, ps.id().changeId());
-          ObjectId content = createNoteContent(notes, ps);
-          if (content != null) {
+          if (addNote(c, createNoteContent(notes, ps))) {
             monitor.update(1);
-            getNotes().set(c, content);
-            getMessage().append("* ").append(c.getShortMessage()).append("\n");
           }
         } else {
           logger.atFine().log(
@@ -181,32 +207,114 @@ class CreateReviewNotes {
         monitor.update(1);
         PatchSet ps = psUtil.current(cn);
         RevCommit commit = rw.parseCommit(ps.commitId());
-        getNotes().set(commit, createNoteContent(cn, ps));
-        getMessage().append("* ").append(commit.getShortMessage()).append("\n");
+        addNote(commit, createNoteContent(cn, ps));
       }
     }
   }
 
-  void commitNotes() throws LockFailureException, IOException {
-    try {
-      if (reviewNotes == null) {
-        return;
-      }
+  /**
+   * Writes the review information of the current patch set of each change as a JSON record.
+   *
+   * <p>Each record is written with a single call followed by a newline, so that records of
+   * concurrent exports to the same synchronized writer do not interleave. No git objects are
+   * written.
+   *
+   * <p>A change whose review information cannot be read is logged and skipped, so that it does not
+   * stop the export of the other changes.
+   *
+   * @return the number of skipped changes
+   * @throws IOException if a record cannot be written
+   */
+  int exportNotes(List<ChangeNotes> notes, Writer out, ProgressMonitor monitor)
+      throws IOException {
+    if (monitor == null) {
+      monitor = NullProgressMonitor.INSTANCE;
+    }
 
-      message.insert(0, "Update notes for submitted changes\n\n");
-      notesBranchUtilFactory
-          .create(project, git, inserter)
-          .commitAllNotes(reviewNotes, REFS_NOTES_REVIEW, gerritServerIdent, message.toString());
-    } finally {
-      if (inserter != null) {
-        inserter.close();
+    int skipped = 0;
+    for (ChangeNotes cn : notes) {
+      monitor.update(1);
+      String record;
+      try {
+        PatchSet ps = psUtil.current(cn);
+        JsonFormatter fmt = new JsonFormatter(ps);
+        createCodeReviewNote(cn, ps, fmt);
+        record = fmt.toString();
+      } catch (NoSuchChangeException | StorageException e) {
+        logger.atSevere().withCause(e).log(
+            "Cannot export review information of change %d in %s",
+            cn.getChangeId().get(), project.get());
+        skipped++;
+        continue;
       }
+      out.write(record + "\n");
+    }
+    return skipped;
+  }
+
+  /**
+   * Commits the notes created so far to {@code refs/notes/review}.
+   *
+   * <p>{@link NotesBranchUtil} leaves the branch alone if the notes are already there, e.g. because
+   * a concurrent duplicate of the same update committed them first. Only a moved branch counts as a
+   * commit.
+   *
+   * @return true if {@code refs/notes/review} was moved, false if there was nothing to commit
+   */
+  boolean commitNotes() throws LockFailureException, IOException {
+    if (reviewNotes == null) {
+      return false;
     }
+
+    message.insert(0, "Update notes for submitted changes\n\n");
+    long start = System.nanoTime();
+    ObjectId oldTip = getNotesTip();
+    notesBranchUtilFactory
+        .create(project, git, inserter)
+        .commitAllNotes(reviewNotes, REFS_NOTES_REVIEW, gerritServerIdent, message.toString());
+    stats.commitNanos += System.nanoTime() - start;
+    return !Objects.equals(oldTip, getNotesTip());
+  }
+
+  /** Releases the object reader and inserter, whether or not the notes were committed. */
+  @Override
+  public void close() {
+    if (reader != null) {
+      reader.close();
+      reader = null;
+    }
+    if (inserter != null) {
+      inserter.close();
+      inserter = null;
+    }
+  }
+
+  /**
+   * Adds a note for a commit unless {@code refs/notes/review} already has a note with the same
+   * content for it.
+   *
+   * <p>This keeps note creation idempotent, so that redoing work which was already done, e.g. by
+   * another server handling the same ref update, does not produce a new notes commit.
+   *
+   * @return true if the note was added, false if it is already up to date
+   */
+  private boolean addNote(RevCommit commit, byte[] content) throws IOException {
+    ObjectId id = getInserter().idFor(Constants.OBJ_BLOB, content);
+    if (id.equals(getExistingNotes().get(commit))) {
+      logger.atFine().log("note for %s is up to date", commit.abbreviate(7).name());
+      return false;
+    }
+    getNotes().set(commit, getInserter().insert(Constants.OBJ_BLOB, content));
+    stats.notesWritten++;
+    stats.bytesInserted += content.length;
+    getMessage().append("* ").append(commit.getShortMessage()).append("\n");
+    return true;
   }
 
   private void markUninteresting(Repository git, String branch, RevWalk rw, ObjectId oldObjectId)
       throws IOException {
     for (Ref r : git.getRefDatabase().getRefs()) {
+      stats.refsScanned++;
       try {
         if (r.getName().equals(branch)) {
           if (!ObjectId.zeroId().equals(oldObjectId)) {
@@ -228,23 +336,23 @@ class CreateReviewNotes {
     }
   }
 
-  @Nullable
-  private ObjectId createNoteContent(ChangeNotes notes, PatchSet ps) throws IOException {
+  private byte[] createNoteContent(ChangeNotes notes, PatchSet ps) throws IOException {
     HeaderFormatter fmt = new HeaderFormatter(gerritServerIdent.getTimeZone(), anonymousCowardName);
-    if (ps != null) {
-      try {
-        createCodeReviewNote(notes, ps, fmt);
-        return getInserter().insert(Constants.OBJ_BLOB, fmt.toString().getBytes(UTF_8));
-      } catch (NoSuchChangeException e) {
-        throw new IOException(e);
-      }
+    try {
+      createCodeReviewNote(notes, ps, fmt);
+      return fmt.toString().getBytes(UTF_8);
+    } catch (NoSuchChangeException e) {
+      throw new IOException(e);
     }
-    return null;
   }
 
   @Nullable
   private PatchSet loadPatchSet(RevCommit c, String destBranch) {
+    if (noChangeCache.hasNoChange(project, destBranch, c)) {
+      return null;
+    }
     String hash = c.name();
+    stats.indexQueries++;
     for (ChangeData cd : queryProvider.get().byBranchCommit(project.get(), destBranch, hash)) {
       for (PatchSet ps : cd.patchSets()) {
         if (ObjectIds.matchesAbbreviation(ps.commitId(), hash)) {
@@ -252,10 +360,11 @@ class CreateReviewNotes {
         }
       }
     }
+    noChangeCache.putNoChange(project, destBranch, c);
     return null; // TODO: createNoCodeReviewNote(branch, c, fmt);
   }
 
-  private void createCodeReviewNote(ChangeNotes notes, PatchSet ps, HeaderFormatter fmt)
+  private void createCodeReviewNote(ChangeNotes notes, PatchSet ps, NoteFormatter fmt)
       throws NoSuchChangeException {
     // This races with the label normalization/writeback done by MergeOp. It may
     // repeat some work, but results should be identical except in the case of
@@ -272,6 +381,7 @@ class CreateReviewNotes {
       } else {
         Optional<LabelType> type = labelTypes.byLabel(a.labelId());
         if (type.isPresent()) {
+          stats.accountsResolved++;
           fmt.appendApproval(
               type.get(),
               a.value(),
@@ -281,6 +391,7 @@ class CreateReviewNotes {
       }
     }
     if (submit != null) {
+      stats.accountsResolved++;
       fmt.appendSubmittedBy(
           submit.accountId(), accountCache.get(submit.accountId()).map(AccountState::account));
       fmt.appendSubmittedAt(submit.granted());
@@ -298,6 +409,11 @@ class CreateReviewNotes {
     fmt.appendBranch(change.getDest().branch());
   }
 
+  /** Returns the work done by this instance so far. */
+  NoteStats getStats() {
+    return stats;
+  }
+
   private ObjectInserter getInserter() {
     if (inserter == null) {
       inserter = git.newObjectInserter();
@@ -305,6 +421,33 @@ class CreateReviewNotes {
     return inserter;
   }
 
+  private ObjectReader getReader() {
+    if (reader == null) {
+      reader = getInserter().newReader();
+    }
+    return reader;
+  }
+
+  private NoteMap getExistingNotes() throws IOException {
+    if (existingNotes == null) {
+      Ref ref = git.exactRef(REFS_NOTES_REVIEW);
+      if (ref == null) {
+        existingNotes = NoteMap.newEmptyMap();
+      } else {
+        try (RevWalk rw = new RevWalk(getReader())) {
+          existingNotes = NoteMap.read(getReader(), rw.parseCommit(ref.getObjectId()));
+        }
+      }
+    }
+    return existingNotes;
+  }
+
+  @Nullable
+  private ObjectId getNotesTip() throws IOException {
+    Ref ref = git.exactRef(REFS_NOTES_REVIEW);
+    return ref != null ? ref.getObjectId() : null;
+  }
+
   private NoteMap getNotes() {
     if (reviewNotes == null) {
       reviewNotes = NoteMap.newEmptyMap();
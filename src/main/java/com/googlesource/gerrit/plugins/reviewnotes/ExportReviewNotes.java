@@ -14,14 +14,18 @@
 
 package com.googlesource.gerrit.plugins.reviewnotes;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import com.github.rholder.retry.Attempt;
 import com.github.rholder.retry.RetryListener;
-import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.MultimapBuilder;
 import com.google.gerrit.common.Nullable;
+import com.google.gerrit.common.data.GlobalCapability;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginData;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.notedb.ChangeNotes;
@@ -30,23 +34,63 @@ import com.google.gerrit.server.update.UpdateException;
 import com.google.gerrit.sshd.CommandMetaData;
 import com.google.gerrit.sshd.SshCommand;
 import com.google.inject.Inject;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.TextProgressMonitor;
 import org.eclipse.jgit.lib.ThreadSafeProgressMonitor;
 import org.kohsuke.args4j.Option;
 
-/** Export review notes for all submitted changes in all projects. */
+/**
+ * Export review notes for all submitted changes in all projects.
+ *
+ * <p>With {@code --format JSON} the review information is streamed as one JSON record per line
+ * instead of being written to {@code refs/notes/review}. As the records contain the names and
+ * preferred emails of reviewers of all projects, the command is restricted to administrators, and
+ * a file written on the server must be below the plugin's data directory.
+ */
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
 @CommandMetaData(
     name = "export",
     description = "Export review notes for all submitted changes in all projects")
 public class ExportReviewNotes extends SshCommand {
+  enum Format {
+    /** Write the notes to refs/notes/review. */
+    NOTES,
+
+    /** Write one JSON record per commit, without writing any git objects. */
+    JSON
+  }
+
   @Option(name = "--threads", usage = "Number of concurrent threads to run")
   private int threads = 2;
 
+  @Option(name = "--format", usage = "Output format (NOTES, JSON)")
+  private Format format = Format.NOTES;
+
+  @Option(
+      name = "--output",
+      metaVar = "FILE",
+      usage =
+          "File below the plugin's data directory to write JSON records to, default is stdout")
+  private String output;
+
+  @Option(name = "--compress", usage = "Compress JSON records with gzip")
+  private boolean compress;
+
   @Inject private GitRepositoryManager gitManager;
 
   @Inject private CreateReviewNotes.Factory reviewNotesFactory;
@@ -55,37 +99,110 @@ public class ExportReviewNotes extends SshCommand {
 
   @Inject private RetryHelper retryHelper;
 
+  @Inject @PluginData private Path dataDir;
+
   private static final Object lock = new Object();
 
   private ListMultimap<Project.NameKey, ChangeNotes> changes;
   private ThreadSafeProgressMonitor monitor;
+  private Writer records;
+  private GZIPOutputStream gzip;
+  private final AtomicInteger failedProjects = new AtomicInteger();
+  private final AtomicInteger skippedChanges = new AtomicInteger();
 
   @Override
   protected void run() throws Failure, InterruptedException {
     if (threads <= 0) {
       threads = 1;
     }
+    if (format != Format.JSON && (output != null || compress)) {
+      throw die("--output and --compress require --format JSON");
+    }
 
     changes = mergedChanges();
 
-    monitor = new ThreadSafeProgressMonitor(new TextProgressMonitor(stdout));
-    monitor.beginTask("Scanning merged changes", changes.size());
-    monitor.startWorkers(threads);
-    for (int tid = 0; tid < threads; tid++) {
-      new Worker().start();
+    // Progress goes to stderr if the JSON records are streamed to stdout.
+    PrintWriter progress = format == Format.JSON && output == null ? stderr : stdout;
+    try {
+      records = openRecords();
+      try {
+        monitor = new ThreadSafeProgressMonitor(new TextProgressMonitor(progress));
+        monitor.beginTask("Scanning merged changes", changes.size());
+        monitor.startWorkers(threads);
+        for (int tid = 0; tid < threads; tid++) {
+          new Worker().start();
+        }
+        monitor.waitForCompletion();
+        monitor.endTask();
+      } finally {
+        closeRecords();
+      }
+    } catch (FileAlreadyExistsException e) {
+      throw die("File already exists: " + output);
+    } catch (IOException e) {
+      throw die(e);
+    }
+    if (records == stdout && stdout.checkError()) {
+      throw die("Cannot write JSON records to stdout");
+    }
+    if (failedProjects.get() > 0 || skippedChanges.get() > 0) {
+      throw die(
+          String.format(
+              "Export incomplete: %d projects failed, %d changes skipped",
+              failedProjects.get(), skippedChanges.get()));
     }
-    monitor.waitForCompletion();
-    monitor.endTask();
   }
 
-  private ListMultimap<Project.NameKey, ChangeNotes> mergedChanges() {
+  @Nullable
+  private Writer openRecords() throws IOException, UnloggedFailure {
+    if (format != Format.JSON) {
+      return null;
+    }
+    if (output == null && !compress) {
+      return stdout;
+    }
+    OutputStream os = output != null ? openOutputFile() : out;
+    if (compress) {
+      gzip = new GZIPOutputStream(os);
+      os = gzip;
+    }
+    return new BufferedWriter(new OutputStreamWriter(os, UTF_8));
+  }
+
+  /** Creates the output file below the plugin's data directory, never overwriting a file. */
+  private OutputStream openOutputFile() throws IOException, UnloggedFailure {
+    Path dir = dataDir.toAbsolutePath().normalize();
+    Path file = dir.resolve(output).normalize();
+    if (!file.startsWith(dir) || file.equals(dir)) {
+      throw die("--output must be a file below " + dir);
+    }
+    Files.createDirectories(file.getParent());
+    return Files.newOutputStream(file, StandardOpenOption.CREATE_NEW);
+  }
+
+  private void closeRecords() throws IOException {
+    if (records == null) {
+      return;
+    }
+    if (output != null) {
+      records.close();
+      return;
+    }
+    records.flush();
+    if (gzip != null) {
+      // Finish the compressed stream without closing the session's output.
+      gzip.finish();
+      out.flush();
+    }
+  }
+
+  private ListMultimap<Project.NameKey, ChangeNotes> mergedChanges() throws UnloggedFailure {
     try {
       return MultimapBuilder.hashKeys()
           .arrayListValues()
           .build(notesFactory.create(notes -> notes.getChange().isMerged()));
     } catch (IOException e) {
-      stderr.println("Cannot read changes from database " + e.getMessage());
-      return ImmutableListMultimap.of();
+      throw die("Cannot read changes from database " + e.getMessage());
     }
   }
 
@@ -97,12 +214,13 @@ public class ExportReviewNotes extends SshCommand {
             .changeUpdate(
                 "exportReviewNotes",
                 updateFactory -> {
-                  try (Repository git = gitManager.openRepository(project)) {
-                    CreateReviewNotes crn = reviewNotesFactory.create(project, git);
+                  try (Repository git = gitManager.openRepository(project);
+                      CreateReviewNotes crn = reviewNotesFactory.create(project, git)) {
                     crn.createNotes(notes, monitor);
                     crn.commitNotes();
                   } catch (RepositoryNotFoundException e) {
                     stderr.println("Unable to open project: " + project.get());
+                    failedProjects.incrementAndGet();
                   }
                   return null;
                 })
@@ -116,6 +234,22 @@ public class ExportReviewNotes extends SshCommand {
             .call();
   }
 
+  private void exportJson(Project.NameKey project, List<ChangeNotes> notes) throws IOException {
+    try (Repository git = gitManager.openRepository(project);
+        CreateReviewNotes crn = reviewNotesFactory.create(project, git)) {
+      int skipped = crn.exportNotes(notes, records, monitor);
+      if (skipped > 0) {
+        stderr.println(
+            String.format(
+                "Skipped %d changes of %s, see the server log", skipped, project.get()));
+        skippedChanges.addAndGet(skipped);
+      }
+    } catch (RepositoryNotFoundException e) {
+      stderr.println("Unable to open project: " + project.get());
+      failedProjects.incrementAndGet();
+    }
+  }
+
   @Nullable
   private Map.Entry<Project.NameKey, List<ChangeNotes>> next() {
     synchronized (lock) {
@@ -136,9 +270,14 @@ public class ExportReviewNotes extends SshCommand {
           Map.Entry<Project.NameKey, List<ChangeNotes>> next = next();
           if (next != null) {
             try {
-              export(next.getKey(), next.getValue());
-            } catch (RestApiException | UpdateException e) {
-              stderr.println(e.getMessage());
+              if (format == Format.JSON) {
+                exportJson(next.getKey(), next.getValue());
+              } else {
+                export(next.getKey(), next.getValue());
+              }
+            } catch (IOException | RestApiException | UpdateException | RuntimeException e) {
+              stderr.println("Cannot export " + next.getKey().get() + ": " + e.getMessage());
+              failedProjects.incrementAndGet();
             }
           } else {
             break;
@@ -36,7 +36,7 @@ import java.util.TimeZone;
  * After instantiation, call as many as necessary <code>append...(...)</code> methods and, at the
  * end, call the {@link #toString()} method to get the built note content.
  */
-class HeaderFormatter {
+class HeaderFormatter implements NoteFormatter {
 
   private final DateTimeFormatter rfc2822DateFormatter;
   private final String anonymousCowardName;
@@ -59,7 +59,8 @@ class HeaderFormatter {
    * @param account the account of the approver, can be {@link Optional#empty} if the account is
    *     missing
    */
-  void appendApproval(
+  @Override
+  public void appendApproval(
       LabelType label, short value, Account.Id accountId, Optional<Account> account) {
     sb.append(label.getName());
     sb.append(LabelValue.formatValue(value));
@@ -104,11 +105,13 @@ class HeaderFormatter {
     }
   }
 
-  void appendProject(String projectName) {
+  @Override
+  public void appendProject(String projectName) {
     sb.append("Project: ").append(projectName).append("\n");
   }
 
-  void appendBranch(String branch) {
+  @Override
+  public void appendBranch(String branch) {
     sb.append("Branch: ").append(branch).append("\n");
   }
 
@@ -119,23 +122,28 @@ class HeaderFormatter {
    * @param account the account of the submitter, can be {@link Optional#empty()} if the account is
    *     missing
    */
-  void appendSubmittedBy(Account.Id accountId, Optional<Account> account) {
+  @Override
+  public void appendSubmittedBy(Account.Id accountId, Optional<Account> account) {
     sb.append("Submitted-by: ");
     appendUserData(accountId, account);
     sb.append("\n");
   }
 
-  void appendSubmittedAt(Instant date) {
+  @Override
+  public void appendSubmittedAt(Instant date) {
     sb.append("Submitted-at: ").append(rfc2822DateFormatter.format(date)).append("\n");
   }
 
-  void appendReviewedOn(UrlFormatter urlFormatter, Project.NameKey project, Change.Id changeId) {
+  @Override
+  public void appendReviewedOn(
+      UrlFormatter urlFormatter, Project.NameKey project, Change.Id changeId) {
     sb.append("Reviewed-on: ")
         .append(urlFormatter.getChangeViewUrl(project, changeId).get())
         .append("\n");
   }
 
-  void appendCommentCount(int nTotal, int nUnresolved) {
+  @Override
+  public void appendCommentCount(int nTotal, int nUnresolved) {
     if (nTotal > 0) {
       sb.append("Comments-Total: ")
           .append(nTotal)
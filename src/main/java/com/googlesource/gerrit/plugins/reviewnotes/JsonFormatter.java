@@ -0,0 +1,109 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import com.google.common.base.Strings;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.LabelType;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.config.UrlFormatter;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Formatter for review information as a single line JSON record.
+ *
+ * <p>Receives the same information as {@link HeaderFormatter}, but keeps account IDs, label values
+ * and timestamps machine readable. Call {@link #toString()} to get the record.
+ */
+class JsonFormatter implements NoteFormatter {
+  private static final Gson GSON = new Gson();
+
+  private final JsonObject record = new JsonObject();
+  private final JsonArray approvals = new JsonArray();
+
+  JsonFormatter(PatchSet ps) {
+    record.addProperty("commit", ps.commitId().name());
+    record.addProperty("change", ps.id().changeId().get());
+    record.addProperty("patchSet", ps.id().get());
+    record.add("approvals", approvals);
+  }
+
+  @Override
+  public void appendApproval(
+      LabelType label, short value, Account.Id accountId, Optional<Account> account) {
+    JsonObject approval = new JsonObject();
+    approval.addProperty("label", label.getName());
+    approval.addProperty("value", value);
+    approval.add("by", toJson(accountId, account));
+    approvals.add(approval);
+  }
+
+  @Override
+  public void appendProject(String projectName) {
+    record.addProperty("project", projectName);
+  }
+
+  @Override
+  public void appendBranch(String branch) {
+    record.addProperty("branch", branch);
+  }
+
+  @Override
+  public void appendSubmittedBy(Account.Id accountId, Optional<Account> account) {
+    record.add("submittedBy", toJson(accountId, account));
+  }
+
+  @Override
+  public void appendSubmittedAt(Instant date) {
+    record.addProperty("submittedAt", date.toString());
+  }
+
+  @Override
+  public void appendReviewedOn(
+      UrlFormatter urlFormatter, Project.NameKey project, Change.Id changeId) {
+    record.addProperty("reviewedOn", urlFormatter.getChangeViewUrl(project, changeId).get());
+  }
+
+  @Override
+  public void appendCommentCount(int nTotal, int nUnresolved) {
+    record.addProperty("commentsTotal", nTotal);
+    record.addProperty("commentsUnresolved", nUnresolved);
+  }
+
+  private static JsonObject toJson(Account.Id accountId, Optional<Account> account) {
+    JsonObject json = new JsonObject();
+    json.addProperty("id", accountId.get());
+    if (account.isPresent()) {
+      if (!Strings.isNullOrEmpty(account.get().fullName())) {
+        json.addProperty("name", account.get().fullName());
+      }
+      if (!Strings.isNullOrEmpty(account.get().preferredEmail())) {
+        json.addProperty("email", account.get().preferredEmail());
+      }
+    }
+    return json;
+  }
+
+  @Override
+  public String toString() {
+    return GSON.toJson(record);
+  }
+}
@@ -0,0 +1,96 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import com.google.common.cache.Cache;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.events.ChangeMovedListener;
+import com.google.gerrit.extensions.events.RevisionCreatedListener;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.time.Duration;
+import org.eclipse.jgit.lib.AnyObjectId;
+
+/**
+ * Commits that are known to have no change, e.g. because they were pushed directly to a branch.
+ *
+ * <p>Remembers the commits for which the index lookup in {@link CreateReviewNotes} found no
+ * change, so that walking them again, e.g. after a rewind or when a large direct push is
+ * retried, does not query the index again. The first walk of a commit still queries the index.
+ *
+ * <p>An entry is invalidated when a patch set is created for the commit, or when its change is
+ * moved to the branch. Since these events are only seen by the server on which they happen, and
+ * since a miss may also be caused by an index that is not up to date yet, entries expire after a
+ * while in any case.
+ */
+@Singleton
+class NoChangeCache implements RevisionCreatedListener, ChangeMovedListener {
+  static final String NAME = "no_change";
+
+  static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(NAME, String.class, Boolean.class)
+            .maximumWeight(100_000)
+            .expireAfterWrite(Duration.ofHours(1));
+      }
+    };
+  }
+
+  private final Cache<String, Boolean> cache;
+
+  @Inject
+  NoChangeCache(@Named(NAME) Cache<String, Boolean> cache) {
+    this.cache = cache;
+  }
+
+  boolean hasNoChange(Project.NameKey project, String branch, AnyObjectId commit) {
+    return cache.getIfPresent(key(project.get(), branch, commit.name())) != null;
+  }
+
+  void putNoChange(Project.NameKey project, String branch, AnyObjectId commit) {
+    cache.put(key(project.get(), branch, commit.name()), Boolean.TRUE);
+  }
+
+  @Override
+  public void onRevisionCreated(RevisionCreatedListener.Event event) {
+    invalidate(event.getChange());
+  }
+
+  @Override
+  public void onChangeMoved(ChangeMovedListener.Event event) {
+    invalidate(event.getChange());
+  }
+
+  private void invalidate(ChangeInfo change) {
+    if (change.currentRevision == null) {
+      // The commit is unknown, so drop everything rather than risk a missing note.
+      cache.invalidateAll();
+      return;
+    }
+    cache.invalidate(
+        key(change.project, RefNames.fullName(change.branch), change.currentRevision));
+  }
+
+  private static String key(String project, String branch, String commit) {
+    return project + '\0' + branch + '\0' + commit;
+  }
+}
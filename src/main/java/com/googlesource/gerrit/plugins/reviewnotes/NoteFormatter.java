@@ -0,0 +1,46 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.LabelType;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.config.UrlFormatter;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Receives the review information of a commit.
+ *
+ * <p>{@link HeaderFormatter} renders it as the content of a note in {@code refs/notes/review},
+ * {@link JsonFormatter} as a JSON record.
+ */
+interface NoteFormatter {
+  void appendApproval(
+      LabelType label, short value, Account.Id accountId, Optional<Account> account);
+
+  void appendProject(String projectName);
+
+  void appendBranch(String branch);
+
+  void appendSubmittedBy(Account.Id accountId, Optional<Account> account);
+
+  void appendSubmittedAt(Instant date);
+
+  void appendReviewedOn(UrlFormatter urlFormatter, Project.NameKey project, Change.Id changeId);
+
+  void appendCommentCount(int nTotal, int nUnresolved);
+}
@@ -0,0 +1,69 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done while creating review notes.
+ *
+ * <p>Collected per {@link CreateReviewNotes} instance and summed up per ref update, so that a
+ * slow update can be attributed to the phase that made it slow.
+ */
+class NoteStats {
+  int commitsWalked;
+  int notesExisting;
+  int refsScanned;
+  int indexQueries;
+  int noteDbLoads;
+  int accountsResolved;
+  int notesWritten;
+  long bytesInserted;
+  long commitNanos;
+
+  void add(NoteStats other) {
+    commitsWalked += other.commitsWalked;
+    notesExisting += other.notesExisting;
+    refsScanned += other.refsScanned;
+    indexQueries += other.indexQueries;
+    noteDbLoads += other.noteDbLoads;
+    accountsResolved += other.accountsResolved;
+    notesWritten += other.notesWritten;
+    bytesInserted += other.bytesInserted;
+    commitNanos += other.commitNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "commits_walked="
+        + commitsWalked
+        + " notes_existing="
+        + notesExisting
+        + " refs_scanned="
+        + refsScanned
+        + " index_queries="
+        + indexQueries
+        + " notedb_loads="
+        + noteDbLoads
+        + " accounts_resolved="
+        + accountsResolved
+        + " notes_written="
+        + notesWritten
+        + " bytes_inserted="
+        + bytesInserted
+        + " commit_ms="
+        + TimeUnit.NANOSECONDS.toMillis(commitNanos);
+  }
+}
@@ -0,0 +1,185 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritInstanceId;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.SystemReader;
+
+/**
+ * Lease that lets only one server create the review notes for a given ref update.
+ *
+ * <p>When several primary servers share a repository, each of them receives the ref update events
+ * for the same push. A lease is a ref below {@code refs/reviewnotes/leases/} that is named after
+ * the updated branch and commit range and points to a blob with the holder and the expiry time.
+ * It is created with a compare-and-swap ref update, so at most one server acquires it. The lease
+ * is deleted when the work is done. A lease that was not released, e.g. because its holder
+ * crashed, can be taken over once it has expired, and is deleted the next time any lease is
+ * acquired in the repository.
+ *
+ * <p>The expiry time is rounded up to a multiple of the timeout, so that all leases a server
+ * takes within one timeout period share the same blob and acquiring a lease rarely writes a new
+ * object.
+ *
+ * <p>Leases are disabled unless {@code reviewnotes.leaseTimeout} is set.
+ */
+@Singleton
+class NotesLease {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  static final String REFS_LEASES = "refs/reviewnotes/leases/";
+
+  private static final Lease NONE = new Lease(null, null, null);
+
+  private final long timeoutMillis;
+  private final String holder;
+
+  @Inject
+  NotesLease(
+      @GerritServerConfig Config config, @GerritInstanceId @Nullable String instanceId) {
+    this.timeoutMillis =
+        ConfigUtil.getTimeUnit(
+            config, "reviewnotes", null, "leaseTimeout", 0, TimeUnit.MILLISECONDS);
+    this.holder =
+        Strings.isNullOrEmpty(instanceId) ? SystemReader.getInstance().getHostname() : instanceId;
+  }
+
+  /**
+   * Acquires the lease for creating the notes of a ref update.
+   *
+   * @return the lease, which must be closed when the notes are committed, or {@code null} if
+   *     another server currently holds the lease for the same ref update
+   */
+  @Nullable
+  Lease acquire(Repository git, String branch, ObjectId oldObjectId, ObjectId newObjectId)
+      throws IOException {
+    if (timeoutMillis <= 0) {
+      return NONE;
+    }
+
+    pruneExpired(git);
+
+    String refName = REFS_LEASES + key(branch, oldObjectId, newObjectId).name();
+    Ref current = git.exactRef(refName);
+    if (current != null && !isExpired(git, current)) {
+      return null;
+    }
+
+    long expiresAt = (System.currentTimeMillis() / timeoutMillis + 2) * timeoutMillis;
+    byte[] data = (holder + "\n" + expiresAt + "\n").getBytes(UTF_8);
+    ObjectId content = new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, data);
+    if (!git.getObjectDatabase().has(content)) {
+      try (ObjectInserter ins = git.newObjectInserter()) {
+        ins.insert(Constants.OBJ_BLOB, data);
+        ins.flush();
+      }
+    }
+
+    RefUpdate ru = git.updateRef(refName);
+    ru.setExpectedOldObjectId(current != null ? current.getObjectId() : ObjectId.zeroId());
+    ru.setNewObjectId(content);
+    ru.setForceUpdate(true);
+    RefUpdate.Result result = ru.update();
+    switch (result) {
+      case NEW:
+      case FORCED:
+        return new Lease(git, refName, content);
+      default:
+        logger.atFine().log("lease %s is held by another server: %s", refName, result);
+        return null;
+    }
+  }
+
+  /** Deletes the leases that have expired without being released. */
+  private static void pruneExpired(Repository git) throws IOException {
+    for (Ref lease : git.getRefDatabase().getRefsByPrefix(REFS_LEASES)) {
+      if (!isExpired(git, lease)) {
+        continue;
+      }
+      RefUpdate ru = git.updateRef(lease.getName());
+      ru.setExpectedOldObjectId(lease.getObjectId());
+      ru.setForceUpdate(true);
+      RefUpdate.Result result = ru.delete();
+      if (result == RefUpdate.Result.FORCED) {
+        logger.atInfo().log("Deleted expired lease %s", lease.getName());
+      }
+    }
+  }
+
+  private static boolean isExpired(Repository git, Ref lease) throws IOException {
+    String content = new String(git.open(lease.getObjectId()).getCachedBytes(), UTF_8);
+    List<String> lines = Splitter.on('\n').splitToList(content);
+    try {
+      return lines.size() < 2 || Long.parseLong(lines.get(1)) < System.currentTimeMillis();
+    } catch (NumberFormatException e) {
+      return true;
+    }
+  }
+
+  private static ObjectId key(String branch, ObjectId oldObjectId, ObjectId newObjectId) {
+    String range = branch + " " + oldObjectId.name() + " " + newObjectId.name();
+    return new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, range.getBytes(UTF_8));
+  }
+
+  /** An acquired lease, which is released on {@link #close()}. */
+  static class Lease implements AutoCloseable {
+    private final Repository git;
+    private final String refName;
+    private final ObjectId content;
+
+    private Lease(Repository git, String refName, ObjectId content) {
+      this.git = git;
+      this.refName = refName;
+      this.content = content;
+    }
+
+    @Override
+    public void close() {
+      if (refName == null) {
+        return;
+      }
+      try {
+        RefUpdate ru = git.updateRef(refName);
+        ru.setExpectedOldObjectId(content);
+        ru.setForceUpdate(true);
+        RefUpdate.Result result = ru.delete();
+        if (result != RefUpdate.Result.FORCED) {
+          logger.atWarning().log("Cannot release lease %s: %s", refName, result);
+        }
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("Cannot release lease %s", refName);
+      }
+    }
+  }
+}
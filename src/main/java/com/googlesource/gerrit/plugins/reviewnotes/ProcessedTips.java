@@ -0,0 +1,150 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Striped;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginData;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.util.FS;
+
+/**
+ * Branch tips for which review notes were created.
+ *
+ * <p>For each project the tip of each branch that was last processed is stored in a file in the
+ * plugin's data directory, e.g. {@code processed-tips/kernel/common.config} for the project {@code
+ * kernel/common}. Comparing it with the current branch tips tells which commits, if any, still
+ * need notes. The file also records whether the initial tips of the project were taken as the
+ * starting point for reconciliation. The tips are only recorded if {@code reviewnotes.reconcile}
+ * is enabled.
+ */
+@Singleton
+class ProcessedTips {
+  private static final String BRANCH = "branch";
+  private static final String TIP = "tip";
+  private static final String RECONCILE = "reconcile";
+  private static final String BASELINE = "baseline";
+
+  private final Path dir;
+  private final boolean enabled;
+  private final Striped<Lock> locks = Striped.lock(64);
+
+  @Inject
+  ProcessedTips(@PluginData Path dataDir, @GerritServerConfig Config config) {
+    this.dir = dataDir.resolve("processed-tips");
+    this.enabled = config.getBoolean("reviewnotes", null, "reconcile", true);
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Returns the processed tip of each branch of a project, keyed by the full branch name. */
+  Map<String, ObjectId> get(Project.NameKey project) throws IOException {
+    Lock lock = locks.get(project);
+    lock.lock();
+    try {
+      FileBasedConfig cfg = load(project);
+      Map<String, ObjectId> tips = new HashMap<>();
+      for (String branch : cfg.getSubsections(BRANCH)) {
+        String tip = cfg.getString(BRANCH, branch, TIP);
+        if (ObjectId.isId(tip)) {
+          tips.put(branch, ObjectId.fromString(tip));
+        }
+      }
+      return tips;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Whether the starting point for reconciling the project was recorded already. */
+  boolean hasBaseline(Project.NameKey project) throws IOException {
+    Lock lock = locks.get(project);
+    lock.lock();
+    try {
+      return load(project).getBoolean(RECONCILE, null, BASELINE, false);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Records the processed tip of a branch.
+   *
+   * @param newObjectId the processed tip, {@link ObjectId#zeroId()} if the branch was deleted
+   */
+  void set(Project.NameKey project, String branch, ObjectId newObjectId) throws IOException {
+    update(project, ImmutableMap.of(branch, newObjectId), false);
+  }
+
+  /**
+   * Records the current tips of branches that were not processed yet as the starting point for
+   * reconciling the project, so that their history is not walked.
+   */
+  void setBaseline(Project.NameKey project, Map<String, ObjectId> tips) throws IOException {
+    update(project, tips, true);
+  }
+
+  private void update(Project.NameKey project, Map<String, ObjectId> tips, boolean baseline)
+      throws IOException {
+    if (!enabled || (tips.isEmpty() && !baseline)) {
+      return;
+    }
+    Lock lock = locks.get(project);
+    lock.lock();
+    try {
+      FileBasedConfig cfg = load(project);
+      for (Map.Entry<String, ObjectId> e : tips.entrySet()) {
+        if (ObjectId.zeroId().equals(e.getValue())) {
+          cfg.unsetSection(BRANCH, e.getKey());
+        } else {
+          cfg.setString(BRANCH, e.getKey(), TIP, e.getValue().name());
+        }
+      }
+      if (baseline) {
+        cfg.setBoolean(RECONCILE, null, BASELINE, true);
+      }
+      Files.createDirectories(cfg.getFile().toPath().getParent());
+      cfg.save();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private FileBasedConfig load(Project.NameKey project) throws IOException {
+    FileBasedConfig cfg =
+        new FileBasedConfig(dir.resolve(project.get() + ".config").toFile(), FS.DETECTED);
+    try {
+      cfg.load();
+    } catch (ConfigInvalidException e) {
+      throw new IOException(e);
+    }
+    return cfg;
+  }
+}
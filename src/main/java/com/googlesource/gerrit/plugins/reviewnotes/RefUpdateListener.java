@@ -14,32 +14,64 @@
 
 package com.googlesource.gerrit.plugins.reviewnotes;
 
+import com.github.rholder.retry.Attempt;
+import com.github.rholder.retry.RetryListener;
+import com.google.common.base.Throwables;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
 import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.git.LockFailureException;
+import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.ProjectRunnable;
 import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.logging.RequestId;
+import com.google.gerrit.server.logging.TraceContext;
 import com.google.gerrit.server.update.RetryHelper;
 import com.google.gerrit.server.update.UpdateException;
 import com.google.inject.Inject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 
 class RefUpdateListener implements GitReferenceUpdatedListener {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  private static final String TRACE_TAG = "reviewnotes";
+
+  enum Mode {
+    /** Create the review notes inline with the ref update. */
+    SYNC,
+
+    /** Create the review notes in a background task. */
+    ASYNC,
+
+    /** Create the review notes inline for small fast-forward updates only. */
+    ADAPTIVE
+  }
+
   private final CreateReviewNotes.Factory reviewNotesFactory;
   private final GitRepositoryManager repoManager;
   private final WorkQueue workQueue;
   private final RetryHelper retryHelper;
-  private final boolean async;
+  private final ReviewNotesMetrics metrics;
+  private final NotesLease notesLease;
+  private final ProcessedTips processedTips;
+  private final Mode mode;
+  private final int syncThreshold;
+  private final int chunkSize;
+  private final long slowOperationThresholdMillis;
 
   @Inject
   RefUpdateListener(
@@ -47,21 +79,46 @@ class RefUpdateListener implements GitReferenceUpdatedListener {
       GitRepositoryManager repoManager,
       WorkQueue workQueue,
       RetryHelper retryHelper,
+      ReviewNotesMetrics metrics,
+      NotesLease notesLease,
+      ProcessedTips processedTips,
       @GerritServerConfig Config config) {
     this.reviewNotesFactory = reviewNotesFactory;
     this.repoManager = repoManager;
     this.workQueue = workQueue;
     this.retryHelper = retryHelper;
-    this.async = config.getBoolean("reviewnotes", null, "async", false);
+    this.metrics = metrics;
+    this.notesLease = notesLease;
+    this.processedTips = processedTips;
+    boolean async = config.getBoolean("reviewnotes", null, "async", false);
+    this.mode = config.getEnum("reviewnotes", null, "mode", async ? Mode.ASYNC : Mode.SYNC);
+    this.syncThreshold = config.getInt("reviewnotes", null, "syncThreshold", 10);
+    int chunkSize = config.getInt("reviewnotes", null, "chunkSize", 1000);
+    this.chunkSize = chunkSize > 0 ? chunkSize : Integer.MAX_VALUE;
+    this.slowOperationThresholdMillis =
+        ConfigUtil.getTimeUnit(
+            config,
+            "reviewnotes",
+            null,
+            "slowOperationThreshold",
+            TimeUnit.SECONDS.toMillis(10),
+            TimeUnit.MILLISECONDS);
   }
 
   @Override
   public void onGitReferenceUpdated(Event e) {
+    if (!e.getRefName().startsWith(RefNames.REFS_HEADS)) {
+      return;
+    }
     Runnable task =
         new ProjectRunnable() {
           @Override
           public void run() {
-            createReviewNotes(e);
+            createReviewNotes(
+                Project.nameKey(e.getProjectName()),
+                e.getRefName(),
+                ObjectId.fromString(e.getOldObjectId()),
+                ObjectId.fromString(e.getNewObjectId()));
           }
 
           @Override
@@ -85,7 +142,7 @@ class RefUpdateListener implements GitReferenceUpdatedListener {
             return "create-review-notes-for-" + e.getProjectName();
           }
         };
-    if (async) {
+    if (mode == Mode.ASYNC || (mode == Mode.ADAPTIVE && !isSmallFastForward(e))) {
       @SuppressWarnings("unused") // No assurance this completes.
       Future<?> possiblyIgnoredError = workQueue.getDefaultQueue().submit(task);
     } else {
@@ -93,32 +150,147 @@ class RefUpdateListener implements GitReferenceUpdatedListener {
     }
   }
 
-  private void createReviewNotes(Event e) {
-    if (!e.getRefName().startsWith(RefNames.REFS_HEADS)) {
-      return;
+  /**
+   * Whether the update only appends a few commits with a single parent each to the branch, so
+   * that the notes for it are cheap to create inline.
+   */
+  private boolean isSmallFastForward(Event e) {
+    ObjectId oldObjectId = ObjectId.fromString(e.getOldObjectId());
+    ObjectId newObjectId = ObjectId.fromString(e.getNewObjectId());
+    if (ObjectId.zeroId().equals(newObjectId)) {
+      return true;
     }
-    try {
-      @SuppressWarnings("unused")
-      var unused =
-          retryHelper
-              .changeUpdate(
-                  "createReviewNotes",
-                  updateFactory -> {
-                    Project.NameKey projectName = Project.nameKey(e.getProjectName());
-                    try (Repository git = repoManager.openRepository(projectName)) {
-                      CreateReviewNotes crn = reviewNotesFactory.create(projectName, git);
-                      crn.createNotes(
-                          e.getRefName(),
-                          ObjectId.fromString(e.getOldObjectId()),
-                          ObjectId.fromString(e.getNewObjectId()),
-                          null);
-                      crn.commitNotes();
-                    }
-                    return null;
-                  })
-              .call();
-    } catch (RestApiException | UpdateException x) {
+    if (ObjectId.zeroId().equals(oldObjectId)) {
+      return false;
+    }
+
+    try (Repository git = repoManager.openRepository(Project.nameKey(e.getProjectName()));
+        RevWalk rw = new RevWalk(git)) {
+      RevCommit c = rw.parseCommit(newObjectId);
+      for (int i = 0; i < syncThreshold; i++) {
+        if (c.getParentCount() != 1) {
+          return false;
+        }
+        if (c.getParent(0).equals(oldObjectId)) {
+          return true;
+        }
+        c = rw.parseCommit(c.getParent(0));
+      }
+    } catch (IOException x) {
+      logger.atWarning().withCause(x).log("%s", x.getMessage());
+    }
+    return false;
+  }
+
+  /**
+   * Creates the review notes for the commits that an update of a branch made reachable and
+   * records the new tip of the branch in {@link ProcessedTips}.
+   *
+   * <p>The operation is tagged with its own ID in the logging context, in addition to the tags of
+   * the request that triggered it, and a breakdown of the work done is logged if it is slower than
+   * {@code reviewnotes.slowOperationThreshold}.
+   */
+  void createReviewNotes(
+      Project.NameKey projectName, String branch, ObjectId oldObjectId, ObjectId newObjectId) {
+    long start = System.nanoTime();
+    String operationId = RequestId.forProject(projectName).toString();
+    NoteStats stats = new NoteStats();
+    boolean skipped = false;
+    try (TraceContext traceContext = TraceContext.open().addTag(TRACE_TAG, operationId);
+        Repository git = repoManager.openRepository(projectName);
+        NotesLease.Lease lease = notesLease.acquire(git, branch, oldObjectId, newObjectId)) {
+      if (lease == null) {
+        logger.atFine().log(
+            "review notes for %s in %s are created by another server",
+            branch, projectName.get());
+        skipped = true;
+        return;
+      }
+
+      if (!ObjectId.zeroId().equals(newObjectId)) {
+        try (CreateReviewNotes walker = reviewNotesFactory.create(projectName, git);
+            RevWalk rw = walker.walk(branch, oldObjectId, newObjectId)) {
+          // Large updates are committed in chunks while they are walked, so that neither the
+          // list of pending commits nor any transaction on refs/notes/review grows unbounded.
+          List<ObjectId> chunk = new ArrayList<>();
+          for (RevCommit c = rw.next(); c != null; c = rw.next()) {
+            stats.commitsWalked++;
+            chunk.add(c.copy());
+            if (chunk.size() >= chunkSize) {
+              createNotes(projectName, git, branch, chunk, stats);
+              chunk = new ArrayList<>();
+            }
+          }
+          if (!chunk.isEmpty()) {
+            createNotes(projectName, git, branch, chunk, stats);
+          }
+          stats.add(walker.getStats());
+        }
+      }
+      processedTips.set(projectName, branch, newObjectId);
+    } catch (IOException | RestApiException | UpdateException x) {
       logger.atSevere().withCause(x).log("%s", x.getMessage());
+    } finally {
+      if (!skipped) {
+        long elapsed = System.nanoTime() - start;
+        metrics.recordRefUpdate(elapsed);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        if (slowOperationThresholdMillis > 0 && elapsedMillis >= slowOperationThresholdMillis) {
+          logger.atWarning().log(
+              "slow review notes operation: id=%s project=%s branch=%s old=%s new=%s"
+                  + " elapsed_ms=%d %s",
+              operationId,
+              projectName.get(),
+              branch,
+              oldObjectId.name(),
+              newObjectId.name(),
+              elapsedMillis,
+              stats);
+        } else {
+          logger.atFine().log(
+              "review notes operation: id=%s project=%s branch=%s elapsed_ms=%d %s",
+              operationId, projectName.get(), branch, elapsedMillis, stats);
+        }
+      }
     }
   }
+
+  private void createNotes(
+      Project.NameKey projectName,
+      Repository git,
+      String branch,
+      List<ObjectId> commits,
+      NoteStats stats)
+      throws RestApiException, UpdateException {
+    @SuppressWarnings("unused")
+    var unused =
+        retryHelper
+            .changeUpdate(
+                "createReviewNotes",
+                updateFactory -> {
+                  CreateReviewNotes crn = reviewNotesFactory.create(projectName, git);
+                  try {
+                    crn.createNotes(branch, commits, null);
+                    if (crn.commitNotes()) {
+                      metrics.recordNotesCommit();
+                    }
+                  } finally {
+                    stats.add(crn.getStats());
+                    crn.close();
+                  }
+                  return null;
+                })
+            .listener(
+                new RetryListener() {
+                  @Override
+                  public <V> void onRetry(Attempt<V> attempt) {
+                    if (attempt.hasException()
+                        && Throwables.getCausalChain(attempt.getExceptionCause()).stream()
+                            .anyMatch(LockFailureException.class::isInstance)) {
+                      metrics.recordLockFailure();
+                    }
+                  }
+                })
+            .call();
+  }
 }
@@ -0,0 +1,82 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics for the ref-update path.
+ *
+ * <p>These are the numbers to watch while a submit storm is replayed against a server: how many
+ * ref updates were handled, how long each one took, how often an attempt to update the notes
+ * branch failed because of a lock failure and how often {@code refs/notes/review} was actually
+ * moved. Ref updates that are left to another server holding the lease are not
+ * counted.
+ */
+@Singleton
+class ReviewNotesMetrics {
+  private final Counter0 refUpdates;
+  private final Timer0 refUpdateLatency;
+  private final Counter0 lockFailures;
+  private final Counter0 notesCommits;
+
+  @Inject
+  ReviewNotesMetrics(MetricMaker metricMaker) {
+    refUpdates =
+        metricMaker.newCounter(
+            "ref_updates",
+            new Description("Ref updates processed by the review notes listener")
+                .setRate()
+                .setUnit("updates"));
+    refUpdateLatency =
+        metricMaker.newTimer(
+            "ref_update_latency",
+            new Description("Time spent creating review notes for one ref update")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    lockFailures =
+        metricMaker.newCounter(
+            "lock_failures",
+            new Description("Attempts to update refs/notes/review that failed with a lock failure")
+                .setRate()
+                .setUnit("failures"));
+    notesCommits =
+        metricMaker.newCounter(
+            "notes_commits",
+            new Description("Updates of refs/notes/review made by this server")
+                .setRate()
+                .setUnit("commits"));
+  }
+
+  void recordRefUpdate(long elapsedNanos) {
+    refUpdates.increment();
+    refUpdateLatency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  void recordLockFailure() {
+    lockFailures.increment();
+  }
+
+  void recordNotesCommit() {
+    notesCommits.increment();
+  }
+}
@@ -14,8 +14,11 @@
 
 package com.googlesource.gerrit.plugins.reviewnotes;
 
+import com.google.gerrit.extensions.events.ChangeMovedListener;
 import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.extensions.events.RevisionCreatedListener;
 import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.lifecycle.LifecycleModule;
 import com.google.inject.AbstractModule;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 
@@ -23,6 +26,16 @@ public class ReviewNotesModule extends AbstractModule {
   @Override
   protected void configure() {
     DynamicSet.bind(binder(), GitReferenceUpdatedListener.class).to(RefUpdateListener.class);
+    install(
+        new LifecycleModule() {
+          @Override
+          protected void configure() {
+            listener().to(ReviewNotesReconciler.class);
+          }
+        });
     install(new FactoryModuleBuilder().build(CreateReviewNotes.Factory.class));
+    install(NoChangeCache.module());
+    DynamicSet.bind(binder(), RevisionCreatedListener.class).to(NoChangeCache.class);
+    DynamicSet.bind(binder(), ChangeMovedListener.class).to(NoChangeCache.class);
   }
 }
@@ -0,0 +1,162 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Creates the review notes for branch updates that were missed, e.g. because the plugin was
+ * disabled or the server crashed while branches were updated.
+ *
+ * <p>Runs at plugin start and, if {@code reviewnotes.reconcileInterval} is set, periodically. For
+ * every branch whose tip differs from the tip recorded in {@link ProcessedTips}, notes are created
+ * for the commits between the two, so the cost depends on the size of the gap only.
+ *
+ * <p>The first time a project is reconciled, the current tips of its branches that have no
+ * recorded tip yet are taken as the starting point, instead of walking their whole history. After
+ * that, a branch without a recorded tip was created, or its first update failed, since the last
+ * run. It is walked from its creation, with all other branches and tags marked uninteresting, so
+ * again only the gap is walked.
+ */
+@Singleton
+class ReviewNotesReconciler implements LifecycleListener, Runnable {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final RefUpdateListener refUpdateListener;
+  private final GitRepositoryManager repoManager;
+  private final ProjectCache projectCache;
+  private final WorkQueue workQueue;
+  private final ProcessedTips processedTips;
+  private final long intervalMillis;
+
+  private ScheduledFuture<?> future;
+
+  @Inject
+  ReviewNotesReconciler(
+      RefUpdateListener refUpdateListener,
+      GitRepositoryManager repoManager,
+      ProjectCache projectCache,
+      WorkQueue workQueue,
+      ProcessedTips processedTips,
+      @GerritServerConfig Config config) {
+    this.refUpdateListener = refUpdateListener;
+    this.repoManager = repoManager;
+    this.projectCache = projectCache;
+    this.workQueue = workQueue;
+    this.processedTips = processedTips;
+    this.intervalMillis =
+        ConfigUtil.getTimeUnit(
+            config, "reviewnotes", null, "reconcileInterval", 0, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void start() {
+    if (!processedTips.isEnabled()) {
+      return;
+    }
+    if (intervalMillis > 0) {
+      future =
+          workQueue
+              .getDefaultQueue()
+              .scheduleWithFixedDelay(this, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    } else {
+      future = workQueue.getDefaultQueue().schedule(this, 0, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (future != null) {
+      future.cancel(true);
+      future = null;
+    }
+  }
+
+  @Override
+  public void run() {
+    for (Project.NameKey project : projectCache.all()) {
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+      try {
+        reconcile(project);
+      } catch (RepositoryNotFoundException e) {
+        // The project was deleted in the meantime.
+      } catch (IOException e) {
+        logger.atSevere().withCause(e).log(
+            "Cannot reconcile review notes of %s", project.get());
+      }
+    }
+  }
+
+  /** Creates the missing review notes of one project. */
+  void reconcile(Project.NameKey project) throws IOException {
+    Map<String, ObjectId> processed = processedTips.get(project);
+    Map<String, ObjectId> tips = new HashMap<>();
+    try (Repository git = repoManager.openRepository(project)) {
+      for (Ref r : git.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+        if (r.getObjectId() != null) {
+          tips.put(r.getName(), r.getObjectId());
+        }
+      }
+    }
+
+    if (!processedTips.hasBaseline(project)) {
+      Map<String, ObjectId> untracked = new HashMap<>(tips);
+      untracked.keySet().removeAll(processed.keySet());
+      processedTips.setBaseline(project, untracked);
+      processed.putAll(untracked);
+    }
+
+    Set<String> branches = new HashSet<>(processed.keySet());
+    branches.addAll(tips.keySet());
+    for (String branch : branches) {
+      ObjectId old = processed.getOrDefault(branch, ObjectId.zeroId());
+      ObjectId tip = tips.getOrDefault(branch, ObjectId.zeroId());
+      if (!tip.equals(old)) {
+        logger.atInfo().log(
+            "Creating missing review notes for %s in %s", branch, project.get());
+        refUpdateListener.createReviewNotes(project, branch, old, tip);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "reviewnotes-reconcile";
+  }
+}
@@ -0,0 +1,46 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Metric maker that keeps the value of each counter, so that tests can read them. */
+class CountingMetricMaker extends DisabledMetricMaker {
+  private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+  @Override
+  public Counter0 newCounter(String name, Description desc) {
+    AtomicLong count = counters.computeIfAbsent(name, n -> new AtomicLong());
+    return new Counter0() {
+      @Override
+      public void incrementBy(long delta) {
+        count.addAndGet(delta);
+      }
+
+      @Override
+      public void remove() {}
+    };
+  }
+
+  long get(String name) {
+    AtomicLong count = counters.get(name);
+    return count != null ? count.get() : 0;
+  }
+}
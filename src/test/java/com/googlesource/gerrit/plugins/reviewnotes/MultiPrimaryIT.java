@@ -0,0 +1,135 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.acceptance.TestPlugin;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Test;
+
+/**
+ * Two plugin instances, as on two primary servers, that share one repository and receive the same
+ * ref update events.
+ */
+@TestPlugin(
+    name = "reviewnotes",
+    sysModule = "com.googlesource.gerrit.plugins.reviewnotes.ReviewNotesModule")
+public class MultiPrimaryIT extends ReviewNotesTestBase {
+  @Test
+  public void sameUpdateOnTwoServersCreatesOneNotesCommit() throws Exception {
+    RefUpdatedEvent update = submitChange();
+    deleteNotes(project);
+
+    CountingMetricMaker metricsA = new CountingMetricMaker();
+    CountingMetricMaker metricsB = new CountingMetricMaker();
+    RefUpdateListener serverA = newListener("server-a", metricsA);
+    RefUpdateListener serverB = newListener("server-b", metricsB);
+
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> a =
+          executor.submit(
+              () -> {
+                barrier.await();
+                serverA.onGitReferenceUpdated(update);
+                return null;
+              });
+      Future<?> b =
+          executor.submit(
+              () -> {
+                barrier.await();
+                serverB.onGitReferenceUpdated(update);
+                return null;
+              });
+      a.get();
+      b.get();
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(notedCommits(project)).containsExactly(update.newObjectId());
+    assertThat(countNotesCommits(project)).isEqualTo(1);
+    assertThat(metricsA.get("notes_commits") + metricsB.get("notes_commits")).isEqualTo(1);
+  }
+
+  @Test
+  public void updateIsSkippedWhileOtherServerHoldsLease() throws Exception {
+    RefUpdatedEvent update = submitChange();
+    deleteNotes(project);
+
+    CountingMetricMaker metrics = new CountingMetricMaker();
+    RefUpdateListener serverB = newListener("server-b", metrics);
+    try (Repository git = repoManager.openRepository(project);
+        NotesLease.Lease lease =
+            new NotesLease(config(), "server-a")
+                .acquire(
+                    git,
+                    update.getRefName(),
+                    ObjectId.fromString(update.getOldObjectId()),
+                    update.newObjectId())) {
+      assertThat(lease).isNotNull();
+      serverB.onGitReferenceUpdated(update);
+      assertThat(notedCommits(project)).isEmpty();
+      assertThat(metrics.get("ref_updates")).isEqualTo(0);
+    }
+
+    serverB.onGitReferenceUpdated(update);
+    assertThat(notedCommits(project)).containsExactly(update.newObjectId());
+    assertThat(countNotesCommits(project)).isEqualTo(1);
+  }
+
+  @Test
+  public void lateDuplicateIsNotCommittedAgain() throws Exception {
+    RefUpdatedEvent update = submitChange();
+    deleteNotes(project);
+
+    CountingMetricMaker metricsB = new CountingMetricMaker();
+    RefUpdateListener serverA = newListener("server-a", new CountingMetricMaker());
+    RefUpdateListener serverB = newListener("server-b", metricsB);
+    serverA.onGitReferenceUpdated(update);
+    serverB.onGitReferenceUpdated(update);
+
+    assertThat(countNotesCommits(project)).isEqualTo(1);
+    assertThat(metricsB.get("ref_updates")).isEqualTo(1);
+    assertThat(metricsB.get("notes_commits")).isEqualTo(0);
+  }
+
+  private RefUpdatedEvent submitChange() throws Exception {
+    PushOneCommit.Result r = createChange();
+    ObjectId oldTip = r.getCommit().getParent(0).copy();
+    approve(r.getChangeId());
+    gApi.changes().id(r.getChangeId()).current().submit();
+    return new RefUpdatedEvent(project, "refs/heads/master", oldTip, r.getCommit().copy());
+  }
+
+  private static Config config() {
+    Config cfg = new Config();
+    cfg.setString("reviewnotes", null, "leaseTimeout", "1 min");
+    return cfg;
+  }
+
+  private RefUpdateListener newListener(String instanceId, CountingMetricMaker metrics) {
+    return newListener(config(), instanceId, metrics);
+  }
+}
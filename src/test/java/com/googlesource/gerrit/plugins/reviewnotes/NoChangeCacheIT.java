@@ -0,0 +1,84 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.acceptance.testsuite.project.TestProjectUpdate.allow;
+
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.acceptance.TestPlugin;
+import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
+import com.google.gerrit.entities.Permission;
+import com.google.inject.Inject;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.junit.Test;
+
+@TestPlugin(
+    name = "reviewnotes",
+    sysModule = "com.googlesource.gerrit.plugins.reviewnotes.ReviewNotesModule")
+public class NoChangeCacheIT extends ReviewNotesTestBase {
+  private static final String MASTER = "refs/heads/master";
+
+  @Inject private ProjectOperations projectOperations;
+
+  @Test
+  public void changeUploadedForDirectlyPushedCommitGetsNote() throws Exception {
+    projectOperations
+        .project(project)
+        .forUpdate()
+        .add(allow(Permission.PUSH).ref("refs/heads/*").group(adminGroupUuid()))
+        .update();
+    NoChangeCache noChangeCache = plugin.getSysInjector().getInstance(NoChangeCache.class);
+    ObjectId oldTip = branchTip(project, MASTER);
+
+    // A direct push has no change, so the commit is remembered as such.
+    PushOneCommit.Result r =
+        pushFactory
+            .create(admin.newIdent(), testRepo, "Direct push", "file", "content")
+            .to(MASTER);
+    r.assertOkStatus();
+    RevCommit commit = r.getCommit();
+    assertThat(notedCommits(project)).doesNotContain(commit);
+    assertThat(noChangeCache.hasNoChange(project, MASTER, commit)).isTrue();
+
+    // Rewind the branch and upload a change for the same commit.
+    rewind(oldTip);
+    PushResult upload = pushHead(testRepo, "refs/for/master", false);
+    assertThat(upload.getRemoteUpdate("refs/for/master").getStatus())
+        .isEqualTo(RemoteRefUpdate.Status.OK);
+    assertThat(noChangeCache.hasNoChange(project, MASTER, commit)).isFalse();
+
+    String changeId = gApi.changes().query("commit:" + commit.name()).get().get(0).id;
+    approve(changeId);
+    gApi.changes().id(changeId).current().submit();
+
+    assertThat(branchTip(project, MASTER)).isEqualTo(commit);
+    assertThat(notedCommits(project)).contains(commit);
+  }
+
+  private void rewind(ObjectId tip) throws Exception {
+    try (Repository git = repoManager.openRepository(project)) {
+      RefUpdate ru = git.updateRef(MASTER);
+      ru.setNewObjectId(tip);
+      ru.setForceUpdate(true);
+      assertThat(ru.update()).isEqualTo(RefUpdate.Result.FORCED);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NotesLeaseTest {
+  private static final String BRANCH = "refs/heads/master";
+  private static final ObjectId A = ObjectId.fromString("1111111111111111111111111111111111111111");
+  private static final ObjectId B = ObjectId.fromString("2222222222222222222222222222222222222222");
+  private static final ObjectId C = ObjectId.fromString("3333333333333333333333333333333333333333");
+
+  private InMemoryRepository repo;
+
+  @Before
+  public void setUp() {
+    repo = new InMemoryRepository(new DfsRepositoryDescription("lease"));
+  }
+
+  @Test
+  public void leaseIsAlwaysAcquiredWhenDisabled() throws Exception {
+    NotesLease lease = newLease(null, "server-a");
+    try (NotesLease.Lease first = lease.acquire(repo, BRANCH, A, B);
+        NotesLease.Lease second = lease.acquire(repo, BRANCH, A, B)) {
+      assertThat(first).isNotNull();
+      assertThat(second).isNotNull();
+      assertThat(leaseRefs()).isEmpty();
+    }
+  }
+
+  @Test
+  public void contendedLeaseIsSkipped() throws Exception {
+    NotesLease serverA = newLease("1 min", "server-a");
+    NotesLease serverB = newLease("1 min", "server-b");
+
+    try (NotesLease.Lease lease = serverA.acquire(repo, BRANCH, A, B)) {
+      assertThat(lease).isNotNull();
+      assertThat(serverB.acquire(repo, BRANCH, A, B)).isNull();
+    }
+    assertThat(leaseRefs()).isEmpty();
+
+    try (NotesLease.Lease lease = serverB.acquire(repo, BRANCH, A, B)) {
+      assertThat(lease).isNotNull();
+    }
+  }
+
+  @Test
+  public void leasesForDifferentUpdatesDoNotContend() throws Exception {
+    NotesLease serverA = newLease("1 min", "server-a");
+    NotesLease serverB = newLease("1 min", "server-b");
+
+    try (NotesLease.Lease first = serverA.acquire(repo, BRANCH, A, B);
+        NotesLease.Lease second = serverB.acquire(repo, BRANCH, B, C)) {
+      assertThat(first).isNotNull();
+      assertThat(second).isNotNull();
+    }
+  }
+
+  @Test
+  public void leasesOfOneServerShareTheirBlob() throws Exception {
+    NotesLease serverA = newLease("1 h", "server-a");
+
+    try (NotesLease.Lease first = serverA.acquire(repo, BRANCH, A, B);
+        NotesLease.Lease second = serverA.acquire(repo, BRANCH, B, C)) {
+      List<Ref> refs = leaseRefs();
+      assertThat(refs).hasSize(2);
+      assertThat(refs.get(0).getObjectId()).isEqualTo(refs.get(1).getObjectId());
+    }
+  }
+
+  @Test
+  public void expiredLeaseIsTakenOver() throws Exception {
+    NotesLease serverA = newLease("1 ms", "server-a");
+    NotesLease serverB = newLease("1 ms", "server-b");
+
+    // Server A crashes without releasing its lease.
+    NotesLease.Lease crashed = serverA.acquire(repo, BRANCH, A, B);
+    assertThat(crashed).isNotNull();
+    Thread.sleep(10);
+
+    try (NotesLease.Lease lease = serverB.acquire(repo, BRANCH, A, B)) {
+      assertThat(lease).isNotNull();
+    }
+  }
+
+  @Test
+  public void expiredLeasesArePruned() throws Exception {
+    NotesLease serverA = newLease("1 ms", "server-a");
+
+    NotesLease.Lease crashed = serverA.acquire(repo, BRANCH, A, B);
+    assertThat(crashed).isNotNull();
+    Thread.sleep(10);
+
+    try (NotesLease.Lease lease = serverA.acquire(repo, BRANCH, B, C)) {
+      assertThat(leaseRefs()).hasSize(1);
+    }
+    assertThat(leaseRefs()).isEmpty();
+  }
+
+  private static NotesLease newLease(String timeout, String instanceId) {
+    Config cfg = new Config();
+    if (timeout != null) {
+      cfg.setString("reviewnotes", null, "leaseTimeout", timeout);
+    }
+    return new NotesLease(cfg, instanceId);
+  }
+
+  private List<Ref> leaseRefs() throws Exception {
+    return repo.getRefDatabase().getRefsByPrefix(NotesLease.REFS_LEASES);
+  }
+}
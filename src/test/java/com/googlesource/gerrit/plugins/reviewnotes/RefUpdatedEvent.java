@@ -0,0 +1,84 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import org.eclipse.jgit.lib.ObjectId;
+
+/** Stand-in for the event Gerrit fires when a branch was updated. */
+class RefUpdatedEvent implements GitReferenceUpdatedListener.Event {
+  private final Project.NameKey project;
+  private final String refName;
+  private final ObjectId oldObjectId;
+  private final ObjectId newObjectId;
+
+  RefUpdatedEvent(
+      Project.NameKey project, String refName, ObjectId oldObjectId, ObjectId newObjectId) {
+    this.project = project;
+    this.refName = refName;
+    this.oldObjectId = oldObjectId;
+    this.newObjectId = newObjectId;
+  }
+
+  @Override
+  public String getProjectName() {
+    return project.get();
+  }
+
+  @Override
+  public String getRefName() {
+    return refName;
+  }
+
+  @Override
+  public String getOldObjectId() {
+    return oldObjectId.name();
+  }
+
+  @Override
+  public String getNewObjectId() {
+    return newObjectId.name();
+  }
+
+  Project.NameKey project() {
+    return project;
+  }
+
+  ObjectId newObjectId() {
+    return newObjectId;
+  }
+
+  @Override
+  public boolean isCreate() {
+    return ObjectId.zeroId().equals(oldObjectId);
+  }
+
+  @Override
+  public boolean isDelete() {
+    return ObjectId.zeroId().equals(newObjectId);
+  }
+
+  @Override
+  public boolean isNonFastForward() {
+    return false;
+  }
+
+  @Override
+  public AccountInfo getUpdater() {
+    return null;
+  }
+}
@@ -0,0 +1,123 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.acceptance.TestPlugin;
+import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Project;
+import com.google.inject.Inject;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+@TestPlugin(
+    name = "reviewnotes",
+    sysModule = "com.googlesource.gerrit.plugins.reviewnotes.ReviewNotesModule")
+public class ReviewNotesReconcilerIT extends ReviewNotesTestBase {
+  private static final String MASTER = "refs/heads/master";
+  private static final String STABLE = "refs/heads/stable";
+
+  @Inject private ProjectOperations projectOperations;
+
+  private ReviewNotesReconciler reconciler;
+  private ProcessedTips processedTips;
+
+  @Before
+  public void setUpReconciler() throws Exception {
+    reconciler = plugin.getSysInjector().getInstance(ReviewNotesReconciler.class);
+    processedTips = plugin.getSysInjector().getInstance(ProcessedTips.class);
+    reconciler.reconcile(project);
+  }
+
+  @Test
+  public void missedUpdateGetsNotes() throws Exception {
+    ObjectId oldTip = branchTip(project, MASTER);
+    ObjectId commit = submitChange(MASTER);
+    forgetUpdate(project, MASTER, oldTip);
+
+    reconciler.reconcile(project);
+
+    assertThat(notedCommits(project)).containsExactly(commit);
+    assertThat(processedTips.get(project)).containsEntry(MASTER, commit);
+  }
+
+  @Test
+  public void branchCreatedWhilePluginWasDownGetsNotes() throws Exception {
+    createBranch(BranchNameKey.create(project, STABLE));
+    ObjectId commit = submitChange(STABLE);
+    forgetUpdate(project, STABLE, ObjectId.zeroId());
+
+    reconciler.reconcile(project);
+
+    assertThat(notedCommits(project)).containsExactly(commit);
+    assertThat(processedTips.get(project)).containsEntry(STABLE, commit);
+  }
+
+  @Test
+  public void failedFirstUpdateOfNewBranchGetsNotes() throws Exception {
+    createBranch(BranchNameKey.create(project, STABLE));
+    ObjectId commit = submitChange(STABLE);
+    forgetUpdate(project, STABLE, ObjectId.zeroId());
+
+    // The walk fails on a missing object, so the update must not be recorded as processed.
+    ObjectId missing = ObjectId.fromString("deadbeefdeadbeefdeadbeefdeadbeefdeadbeef");
+    plugin
+        .getSysInjector()
+        .getInstance(RefUpdateListener.class)
+        .createReviewNotes(project, STABLE, ObjectId.zeroId(), missing);
+    assertThat(processedTips.get(project)).doesNotContainKey(STABLE);
+
+    reconciler.reconcile(project);
+
+    assertThat(notedCommits(project)).containsExactly(commit);
+    assertThat(processedTips.get(project)).containsEntry(STABLE, commit);
+  }
+
+  @Test
+  public void firstRunTakesCurrentTipsAsBaseline() throws Exception {
+    Project.NameKey other = projectOperations.newProject().create();
+    deleteNotes(other);
+    processedTips.set(other, MASTER, ObjectId.zeroId());
+    assertThat(processedTips.hasBaseline(other)).isFalse();
+
+    reconciler.reconcile(other);
+
+    assertThat(processedTips.hasBaseline(other)).isTrue();
+    assertThat(processedTips.get(other)).containsEntry(MASTER, branchTip(other, MASTER));
+    assertThat(notedCommits(other)).isEmpty();
+  }
+
+  private ObjectId submitChange(String branch) throws Exception {
+    PushOneCommit.Result r =
+        pushFactory
+            .create(admin.newIdent(), testRepo, "Change on " + branch, "file", branch)
+            .to("refs/for/" + branch);
+    r.assertOkStatus();
+    approve(r.getChangeId());
+    gApi.changes().id(r.getChangeId()).current().submit();
+    return branchTip(project, branch);
+  }
+
+  /** Drops the notes and resets the processed tip, as if the update was never seen. */
+  private void forgetUpdate(Project.NameKey project, String branch, ObjectId processedTip)
+      throws Exception {
+    deleteNotes(project);
+    processedTips.set(project, branch, processedTip);
+  }
+}
@@ -0,0 +1,102 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import com.google.gerrit.acceptance.LightweightPluginDaemonTest;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.update.RetryHelper;
+import com.google.inject.Injector;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.notes.Note;
+import org.eclipse.jgit.notes.NoteMap;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Base class for integration tests that drive the plugin's listener directly and inspect {@code
+ * refs/notes/review}.
+ */
+abstract class ReviewNotesTestBase extends LightweightPluginDaemonTest {
+  protected static final String REFS_NOTES_REVIEW = "refs/notes/review";
+
+  /**
+   * Creates a listener with the plugin's bindings, but its own configuration and metrics, as if it
+   * ran on the server with the given instance ID.
+   */
+  protected RefUpdateListener newListener(
+      Config cfg, @Nullable String instanceId, CountingMetricMaker metrics) {
+    Injector injector = plugin.getSysInjector();
+    return new RefUpdateListener(
+        injector.getInstance(CreateReviewNotes.Factory.class),
+        repoManager,
+        injector.getInstance(WorkQueue.class),
+        injector.getInstance(RetryHelper.class),
+        new ReviewNotesMetrics(metrics),
+        new NotesLease(cfg, instanceId),
+        injector.getInstance(ProcessedTips.class),
+        cfg);
+  }
+
+  protected ObjectId branchTip(Project.NameKey project, String branch) throws Exception {
+    return ObjectId.fromString(gApi.projects().name(project.get()).branch(branch).get().revision);
+  }
+
+  protected void deleteNotes(Project.NameKey project) throws IOException {
+    try (Repository git = repoManager.openRepository(project)) {
+      RefUpdate ru = git.updateRef(REFS_NOTES_REVIEW);
+      ru.setForceUpdate(true);
+      ru.delete();
+    }
+  }
+
+  protected Set<ObjectId> notedCommits(Project.NameKey project) throws IOException {
+    Set<ObjectId> noted = new HashSet<>();
+    try (Repository git = repoManager.openRepository(project);
+        RevWalk rw = new RevWalk(git)) {
+      Ref ref = git.exactRef(REFS_NOTES_REVIEW);
+      if (ref != null) {
+        NoteMap notes = NoteMap.read(rw.getObjectReader(), rw.parseCommit(ref.getObjectId()));
+        for (Note note : notes) {
+          noted.add(note.copy());
+        }
+      }
+    }
+    return noted;
+  }
+
+  protected long countNotesCommits(Project.NameKey project) throws IOException {
+    try (Repository git = repoManager.openRepository(project);
+        RevWalk rw = new RevWalk(git)) {
+      Ref ref = git.exactRef(REFS_NOTES_REVIEW);
+      if (ref == null) {
+        return 0;
+      }
+      rw.markStart(rw.parseCommit(ref.getObjectId()));
+      long count = 0;
+      while (rw.next() != null) {
+        count++;
+      }
+      return count;
+    }
+  }
+}
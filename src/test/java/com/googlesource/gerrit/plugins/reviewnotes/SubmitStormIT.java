@@ -0,0 +1,247 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.reviewnotes;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.util.stream.Collectors.toSet;
+
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.acceptance.TestPlugin;
+import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Project;
+import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+/**
+ * Load harness for the ref-update path.
+ *
+ * <p>Submits changes on several branches of several projects, drops the review notes they
+ * produced and then replays the recorded branch updates concurrently against a {@link
+ * RefUpdateListener}, once in sync and once in async mode. Reports the throughput, latency
+ * percentiles, lock failures and commits on {@code refs/notes/review}, and checks that every
+ * submitted commit got its note.
+ *
+ * <p>In sync mode the latency is the time spent in the listener. In async mode it is the time from
+ * firing the event until the note is visible, measured with a resolution of {@link #POLL_MILLIS}.
+ *
+ * <p>The size of the storm is set with system properties, e.g. {@code bazel test
+ * --jvmopt=-Dreviewnotes.storm.projects=10 --test_output=streamed
+ * plugins/reviewnotes:reviewnotes_tests}:
+ *
+ * <ul>
+ *   <li>{@code reviewnotes.storm.projects}: number of projects, by default 2
+ *   <li>{@code reviewnotes.storm.branches}: branches per project, by default 2
+ *   <li>{@code reviewnotes.storm.changes}: submitted changes per branch, by default 3
+ *   <li>{@code reviewnotes.storm.threads}: threads firing events, by default 4
+ *   <li>{@code reviewnotes.storm.rounds}: how often each event is delivered, by default 1
+ * </ul>
+ */
+@TestPlugin(
+    name = "reviewnotes",
+    sysModule = "com.googlesource.gerrit.plugins.reviewnotes.ReviewNotesModule")
+public class SubmitStormIT extends ReviewNotesTestBase {
+  private static final int PROJECTS = Integer.getInteger("reviewnotes.storm.projects", 2);
+  private static final int BRANCHES = Integer.getInteger("reviewnotes.storm.branches", 2);
+  private static final int CHANGES = Integer.getInteger("reviewnotes.storm.changes", 3);
+  private static final int THREADS = Integer.getInteger("reviewnotes.storm.threads", 4);
+  private static final int ROUNDS = Integer.getInteger("reviewnotes.storm.rounds", 1);
+  private static final long POLL_MILLIS = 10;
+  private static final long TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  @Inject private ProjectOperations projectOperations;
+
+  @Test
+  public void syncStorm() throws Exception {
+    runStorm(RefUpdateListener.Mode.SYNC);
+  }
+
+  @Test
+  public void asyncStorm() throws Exception {
+    runStorm(RefUpdateListener.Mode.ASYNC);
+  }
+
+  private void runStorm(RefUpdateListener.Mode mode) throws Exception {
+    List<RefUpdatedEvent> updates = submitChanges();
+    Set<Project.NameKey> projects = updates.stream().map(RefUpdatedEvent::project).collect(toSet());
+    Set<ObjectId> expected = updates.stream().map(RefUpdatedEvent::newObjectId).collect(toSet());
+    for (Project.NameKey p : projects) {
+      deleteNotes(p);
+    }
+
+    Config cfg = new Config();
+    cfg.setEnum("reviewnotes", null, "mode", mode);
+    CountingMetricMaker metrics = new CountingMetricMaker();
+    RefUpdateListener listener = newListener(cfg, null, metrics);
+
+    List<RefUpdatedEvent> stream = new ArrayList<>();
+    for (int i = 0; i < ROUNDS; i++) {
+      stream.addAll(updates);
+    }
+    Collections.shuffle(stream, new Random(42));
+
+    Map<ObjectId, Long> firedAt = new HashMap<>();
+    ConcurrentLinkedQueue<Long> callNanos = new ConcurrentLinkedQueue<>();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    long start = System.nanoTime();
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (RefUpdatedEvent e : stream) {
+        firedAt.putIfAbsent(e.newObjectId(), System.nanoTime());
+        futures.add(
+            executor.submit(
+                () -> {
+                  long t0 = System.nanoTime();
+                  listener.onGitReferenceUpdated(e);
+                  callNanos.add(System.nanoTime() - t0);
+                }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Map<ObjectId, Long> notedAt = awaitNotes(projects, expected);
+    awaitRefUpdates(metrics, stream.size());
+    long elapsedNanos = System.nanoTime() - start;
+
+    long[] latencies;
+    if (mode == RefUpdateListener.Mode.SYNC) {
+      latencies = callNanos.stream().mapToLong(Long::longValue).toArray();
+    } else {
+      latencies =
+          expected.stream().mapToLong(id -> notedAt.get(id) - firedAt.get(id)).toArray();
+    }
+    Arrays.sort(latencies);
+
+    long notesCommits = 0;
+    for (Project.NameKey p : projects) {
+      notesCommits += countNotesCommits(p);
+    }
+
+    System.out.format(
+        "reviewnotes submit storm: mode=%s projects=%d branches=%d events=%d threads=%d"
+            + " elapsed_ms=%d throughput=%.1f/s p50_ms=%d p90_ms=%d p99_ms=%d max_ms=%d"
+            + " lock_failures=%d notes_commits=%d%n",
+        mode,
+        projects.size(),
+        BRANCHES,
+        stream.size(),
+        THREADS,
+        TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+        stream.size() * 1e9 / elapsedNanos,
+        percentileMillis(latencies, 50),
+        percentileMillis(latencies, 90),
+        percentileMillis(latencies, 99),
+        percentileMillis(latencies, 100),
+        metrics.get("lock_failures"),
+        notesCommits);
+
+    assertThat(metrics.get("ref_updates")).isEqualTo(stream.size());
+    // Every counted update moved the branch by at least one commit. A concurrent update adds a
+    // merge commit too, and a duplicate that finds its notes in place is not counted at all.
+    assertThat(metrics.get("notes_commits")).isAtMost(notesCommits);
+    assertThat(metrics.get("notes_commits")).isAtLeast(projects.size());
+    assertThat(notesCommits).isAtLeast(projects.size());
+    assertThat(notesCommits).isAtMost(updates.size());
+  }
+
+  private List<RefUpdatedEvent> submitChanges() throws Exception {
+    List<RefUpdatedEvent> updates = new ArrayList<>();
+    for (int p = 0; p < PROJECTS; p++) {
+      Project.NameKey name = projectOperations.newProject().create();
+      for (int b = 0; b < BRANCHES; b++) {
+        String branch = "refs/heads/storm-" + b;
+        createBranch(BranchNameKey.create(name, branch));
+        TestRepository<InMemoryRepository> repo = cloneProject(name, admin);
+        for (int c = 0; c < CHANGES; c++) {
+          ObjectId oldTip = branchTip(name, branch);
+          PushOneCommit.Result r =
+              pushFactory
+                  .create(admin.newIdent(), repo, "Storm change " + c, "file-" + c, "content " + c)
+                  .to("refs/for/" + branch);
+          r.assertOkStatus();
+          approve(r.getChangeId());
+          gApi.changes().id(r.getChangeId()).current().submit();
+          updates.add(new RefUpdatedEvent(name, branch, oldTip, branchTip(name, branch)));
+        }
+      }
+    }
+    return updates;
+  }
+
+  /** Waits until every expected commit has a note and returns when each note was first seen. */
+  private Map<ObjectId, Long> awaitNotes(Set<Project.NameKey> projects, Set<ObjectId> expected)
+      throws Exception {
+    Map<ObjectId, Long> notedAt = new HashMap<>();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+    while (notedAt.size() < expected.size()) {
+      assertWithMessage("commits without note after %s ms", TIMEOUT_MILLIS)
+          .that(System.nanoTime() < deadline)
+          .isTrue();
+      for (Project.NameKey p : projects) {
+        long now = System.nanoTime();
+        for (ObjectId id : notedCommits(p)) {
+          if (expected.contains(id)) {
+            notedAt.putIfAbsent(id, now);
+          }
+        }
+      }
+      if (notedAt.size() < expected.size()) {
+        Thread.sleep(POLL_MILLIS);
+      }
+    }
+    return notedAt;
+  }
+
+  /** Waits until the listener has finished processing all events, also in async mode. */
+  private static void awaitRefUpdates(CountingMetricMaker metrics, long count)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+    while (metrics.get("ref_updates") < count) {
+      assertWithMessage("ref updates not processed after %s ms", TIMEOUT_MILLIS)
+          .that(System.nanoTime() < deadline)
+          .isTrue();
+      Thread.sleep(POLL_MILLIS);
+    }
+  }
+
+  private static long percentileMillis(long[] sortedNanos, int percentile) {
+    if (sortedNanos.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+    return TimeUnit.NANOSECONDS.toMillis(sortedNanos[Math.max(index, 0)]);
+  }
+}